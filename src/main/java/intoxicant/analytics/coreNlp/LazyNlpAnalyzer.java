@@ -0,0 +1,315 @@
+package intoxicant.analytics.coreNlp;
+
+import edu.stanford.nlp.ling.CoreAnnotation;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.pipeline.AnnotationPipeline;
+import edu.stanford.nlp.pipeline.Annotator;
+import edu.stanford.nlp.pipeline.AnnotatorImplementations;
+import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+import edu.stanford.nlp.util.PropertiesUtils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * User: jconwell
+ * Annotation pipeline that runs the same annotators as StanfordCoreNLP, but controls when each annotator loads its
+ * model so a service can come up before every model is in memory.
+ *
+ * Annotators are constructed directly, built in ones from CoreNlp's named annotator factories and custom ones
+ * (customAnnotatorClass.*) by reflection, rather than through StanfordCoreNLP's shared annotator pool, since the
+ * pool loads models one at a time while holding its lock.  That is what lets BACKGROUND mode load models in
+ * parallel.  Loaded annotators are cached process wide by name and annotator properties, so every
+ * LazyNlpAnalyzer in the JVM loads each model once; they are not shared with StanfordCoreNLP instances though.
+ *
+ * NOTE: asking the pipeline, or any of its annotators, for requires() or requirementsSatisfied() loads the models
+ * of the annotators involved, since CoreNlp only knows an annotator's requirements once it is constructed.
+ * Wrapping the analyzer in a pipeline that enforces requirements turns ON_FIRST_USE into eager loading.
+ */
+public class LazyNlpAnalyzer extends AnnotationPipeline {
+
+    /**
+     * When annotator models are loaded
+     */
+    public enum LoadMode {
+        /**
+         * load every model on the constructing thread before the constructor returns
+         */
+        EAGER,
+        /**
+         * load each model the first time a document reaches its annotator
+         */
+        ON_FIRST_USE,
+        /**
+         * load every model in parallel on background threads, documents wait only for the models they need
+         */
+        BACKGROUND
+    }
+
+    /**
+     * annotator properties in CoreNlp's separator format, ie: "tokenize, ssplit pos"
+     */
+    private static final String ANNOTATOR_SEPARATOR = "[, \t]+";
+
+    /**
+     * loaded (or loading) annotators shared by every LazyNlpAnalyzer, keyed by annotator name and its properties
+     */
+    private static final ConcurrentMap<String, CompletableFuture<Annotator>> sharedAnnotators = new ConcurrentHashMap<>();
+
+    private final LoadMode loadMode;
+    private final List<AnnotatorLoader> loaders = new ArrayList<>();
+    private final long constructionStart = System.nanoTime();
+    private final CompletableFuture<Void> ready;
+    private volatile long readyNanos = -1;
+
+    public LazyNlpAnalyzer(Properties props, LoadMode loadMode) {
+        this.loadMode = loadMode;
+
+        //the list of nlp annotators is order dependent, so keep the order of the annotators property
+        for (String name : props.getProperty("annotators", "").split(ANNOTATOR_SEPARATOR)) {
+            name = name.trim();
+            if (!name.isEmpty()) {
+                AnnotatorLoader loader = new AnnotatorLoader(name, props);
+                this.loaders.add(loader);
+                this.addAnnotator(loader);
+            }
+        }
+
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[loaders.size()];
+        for (int i = 0; i < loaders.size(); i++) {
+            futures[i] = loaders.get(i).annotator;
+        }
+        //record the ready time in the stage handed out by readiness(), so callers woken by it always see it
+        this.ready = CompletableFuture.allOf(futures).whenComplete((v, e) -> readyNanos = System.nanoTime() - constructionStart);
+
+        switch (loadMode) {
+            case EAGER:
+                //like StanfordCoreNLP, a model that fails to load fails construction
+                loadAll();
+                break;
+            case BACKGROUND:
+                //one thread per annotator, loading a model is as much waiting on disk as it is cpu
+                ExecutorService executor = Executors.newFixedThreadPool(
+                        Math.max(1, loaders.size()),
+                        runnable -> {
+                            Thread thread = new Thread(runnable, "nlp-model-loader");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+                for (AnnotatorLoader loader : loaders) {
+                    executor.execute(() -> {
+                        try {
+                            loader.load();
+                        } catch (Throwable e) {
+                            //the loader's future already carries the error, readiness() and annotate() report it
+                        }
+                    });
+                }
+                //let the queued loads finish, then the threads exit
+                executor.shutdown();
+                break;
+            case ON_FIRST_USE:
+                break;
+        }
+    }
+
+    public LoadMode getLoadMode() {
+        return loadMode;
+    }
+
+    /**
+     * Returns true once every annotator has loaded its model, ie: for a health check
+     */
+    public boolean isReady() {
+        return ready.isDone() && !ready.isCompletedExceptionally();
+    }
+
+    /**
+     * Future that completes once every annotator has loaded its model, or completes exceptionally if one fails
+     */
+    public CompletableFuture<Void> readiness() {
+        return ready;
+    }
+
+    /**
+     * Future that completes once the named annotator has loaded its model
+     * @param annotatorName annotator name as used in the annotators property, ie: "ner"
+     */
+    public CompletableFuture<Annotator> readiness(String annotatorName) {
+        for (AnnotatorLoader loader : loaders) {
+            if (loader.name.equals(annotatorName)) {
+                return loader.annotator;
+            }
+        }
+        throw new IllegalArgumentException("Annotator '" + annotatorName + "' is not in this pipeline");
+    }
+
+    /**
+     * Loads every model not loaded yet on the calling thread and waits for models loading in the background
+     */
+    public void loadAll() {
+        for (AnnotatorLoader loader : loaders) {
+            loader.get();
+        }
+    }
+
+    /**
+     * Drops the annotators shared by LazyNlpAnalyzers so their models can be garbage collected once the analyzers
+     * holding them are gone, ie: alongside StanfordCoreNLP.clearAnnotatorPool()
+     */
+    public static void clearAnnotatorCache() {
+        sharedAnnotators.clear();
+    }
+
+    /**
+     * Returns how long each annotator took to load so far
+     */
+    public StartupReport getStartupReport() {
+        Map<String, Long> loadTimeMillis = new LinkedHashMap<>();
+        List<String> pending = new ArrayList<>();
+        List<String> failed = new ArrayList<>();
+        for (AnnotatorLoader loader : loaders) {
+            if (!loader.annotator.isDone()) {
+                pending.add(loader.name);
+            } else if (loader.annotator.isCompletedExceptionally()) {
+                failed.add(loader.name);
+            } else {
+                loadTimeMillis.put(loader.name, TimeUnit.NANOSECONDS.toMillis(loader.loadNanos));
+            }
+        }
+        long readyMillis = isReady() && readyNanos >= 0 ? TimeUnit.NANOSECONDS.toMillis(readyNanos) : -1;
+        return new StartupReport(loadTimeMillis, pending, failed, readyMillis);
+    }
+
+    /**
+     * Stands in for one annotator of the pipeline and loads it at most once, on whichever thread asks first
+     */
+    private static class AnnotatorLoader implements Annotator {
+        private final String name;
+        private final Properties props;
+        private final String cacheKey;
+        private final CompletableFuture<Annotator> annotator = new CompletableFuture<>();
+        private volatile long loadNanos;
+
+        AnnotatorLoader(String name, Properties props) {
+            this.name = name;
+            this.props = new Properties();
+            this.props.putAll(props);
+            this.props.setProperty("annotators", name);
+            this.cacheKey = name + PropertiesUtils.getSignature(name, props);
+        }
+
+        void load() {
+            if (annotator.isDone()) {
+                return;
+            }
+            synchronized (this) {
+                if (annotator.isDone()) {
+                    return;
+                }
+                long start = System.nanoTime();
+                try {
+                    //the first loader with this key constructs the annotator, the others wait for it
+                    CompletableFuture<Annotator> created = new CompletableFuture<>();
+                    CompletableFuture<Annotator> shared = sharedAnnotators.computeIfAbsent(cacheKey, k -> created);
+                    if (shared == created) {
+                        try {
+                            created.complete(construct());
+                        } catch (Throwable e) {
+                            //don't cache failures, a later analyzer can try again
+                            sharedAnnotators.remove(cacheKey, created);
+                            created.completeExceptionally(e);
+                        }
+                    }
+                    Annotator loaded = join(shared);
+                    loadNanos = System.nanoTime() - start;
+                    annotator.complete(loaded);
+                } catch (Throwable e) {
+                    //errors too (ie: OutOfMemoryError), otherwise readiness never completes
+                    loadNanos = System.nanoTime() - start;
+                    annotator.completeExceptionally(e);
+                    throw e;
+                }
+            }
+        }
+
+        private Annotator construct() throws ReflectiveOperationException {
+            BiFunction<Properties, AnnotatorImplementations, Annotator> factory = StanfordCoreNLP.getNamedAnnotators().get(name);
+            if (factory != null) {
+                return factory.apply(props, new AnnotatorImplementations());
+            }
+
+            //custom annotators are built the way CoreNlp builds them, with a (name, properties) constructor
+            String customClass = props.getProperty("customAnnotatorClass." + name);
+            if (customClass != null) {
+                try {
+                    return (Annotator) Class.forName(customClass)
+                            .getConstructor(String.class, Properties.class)
+                            .newInstance(name, props);
+                } catch (InvocationTargetException e) {
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    if (e.getCause() instanceof Error) {
+                        throw (Error) e.getCause();
+                    }
+                    throw e;
+                }
+            }
+
+            //unknown annotator, let StanfordCoreNLP report it
+            return new StanfordCoreNLP(props, false);
+        }
+
+        Annotator get() {
+            load();
+            return join(annotator);
+        }
+
+        /**
+         * Waits for the future and rethrows the error it failed with
+         */
+        private static Annotator join(CompletableFuture<Annotator> future) {
+            try {
+                return future.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        @Override
+        public void annotate(Annotation annotation) {
+            get().annotate(annotation);
+        }
+
+        /**
+         * Loads the annotator's model if it isn't loaded yet
+         */
+        @Override
+        public Set<Class<? extends CoreAnnotation>> requirementsSatisfied() {
+            return get().requirementsSatisfied();
+        }
+
+        /**
+         * Loads the annotator's model if it isn't loaded yet
+         */
+        @Override
+        public Set<Class<? extends CoreAnnotation>> requires() {
+            return get().requires();
+        }
+    }
+}
@@ -165,4 +165,19 @@ public class NlpOptions {
         //create the nlp pipeline object -- it can take a while
         return new StanfordCoreNLP(props);
     }
-}
\ No newline at end of file
+
+    /**
+     * Creates and returns an analyzer based on the configured options that loads its annotator models according
+     * to the load mode, ie: on first use or in parallel in the background, instead of all up front
+     */
+    public LazyNlpAnalyzer buildLazyNlpAnalyzer(LazyNlpAnalyzer.LoadMode loadMode) {
+        return new LazyNlpAnalyzer(this.getNlpProperties(), loadMode);
+    }
+
+    /**
+     * Creates and returns an analyzer that loads its annotator models according to the load mode
+     */
+    public LazyNlpAnalyzer buildLazyNlpAnalyzer(Properties props, LazyNlpAnalyzer.LoadMode loadMode) {
+        return new LazyNlpAnalyzer(props, loadMode);
+    }
+}
@@ -0,0 +1,66 @@
+package intoxicant.analytics.coreNlp;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * User: jconwell
+ * Breakdown of how long each annotator of a LazyNlpAnalyzer took to load its model
+ */
+public class StartupReport {
+
+    /**
+     * load time in milliseconds of each loaded annotator, in pipeline order
+     */
+    public final Map<String, Long> loadTimeMillis;
+    /**
+     * annotators that haven't finished loading yet
+     */
+    public final List<String> pending;
+    /**
+     * annotators that failed to load
+     */
+    public final List<String> failed;
+    /**
+     * milliseconds from analyzer construction until every annotator was loaded, -1 if not ready yet
+     */
+    public final long readyMillis;
+
+    public StartupReport(Map<String, Long> loadTimeMillis, List<String> pending, List<String> failed, long readyMillis) {
+        this.loadTimeMillis = loadTimeMillis;
+        this.pending = pending;
+        this.failed = failed;
+        this.readyMillis = readyMillis;
+    }
+
+    /**
+     * Sum of the load times of every loaded annotator.  In background mode this can be larger than readyMillis
+     * since annotators load in parallel.
+     */
+    public long totalLoadTimeMillis() {
+        long total = 0;
+        for (Long millis : loadTimeMillis.values()) {
+            total += millis;
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder("Startup report:\n");
+        for (Map.Entry<String, Long> entry : loadTimeMillis.entrySet()) {
+            report.append(String.format("  %-12s %8d ms%n", entry.getKey(), entry.getValue()));
+        }
+        for (String annotator : pending) {
+            report.append(String.format("  %-12s  pending%n", annotator));
+        }
+        for (String annotator : failed) {
+            report.append(String.format("  %-12s   failed%n", annotator));
+        }
+        report.append(String.format("  %-12s %8d ms%n", "total load", totalLoadTimeMillis()));
+        if (readyMillis >= 0) {
+            report.append(String.format("  %-12s %8d ms%n", "ready after", readyMillis));
+        }
+        return report.toString();
+    }
+}
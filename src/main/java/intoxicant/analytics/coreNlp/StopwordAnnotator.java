@@ -2,16 +2,19 @@ package intoxicant.analytics.coreNlp;
 
 import edu.stanford.nlp.ling.CoreAnnotation;
 import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreAnnotations.SentencesAnnotation;
 import edu.stanford.nlp.ling.CoreAnnotations.TokensAnnotation;
 import edu.stanford.nlp.ling.CoreLabel;
 import edu.stanford.nlp.pipeline.Annotation;
 import edu.stanford.nlp.pipeline.Annotator;
+import edu.stanford.nlp.util.CoreMap;
 import edu.stanford.nlp.util.Pair;
+import org.apache.lucene.analysis.CharArrayMap;
 import org.apache.lucene.analysis.CharArraySet;
-import org.apache.lucene.analysis.StopAnalyzer;
 import org.apache.lucene.util.Version;
 
 import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * User: jconwell
@@ -39,11 +42,67 @@ public class StopwordAnnotator implements Annotator, CoreAnnotation<Pair<Boolean
      */
     public static final String CHECK_LEMMA = "check-lemma";
 
+    /**
+     * Property key to turn on per document stopword statistics and process wide stopword hit counters
+     */
+    public static final String COLLECT_STATS = "stopword-stats";
+
+    /**
+     * Property key to name the stopword list in the process wide hit counters.
+     * Counters are shared by name, so a name can only be used for one stopword list.
+     */
+    public static final String STOPWORDS_LIST_NAME = "stopword-list-name";
+
+    /**
+     * Hit counter name of the built in Lucene stopword list when STOPWORDS_LIST_NAME isn't set.
+     * A custom STOPWORDS_LIST without a name is counted as "custom-" followed by a hash of the list.
+     */
+    public static final String DEFAULT_LIST_NAME = "default";
+
+    /**
+     * Prefix of the hit counter list name of each language dictionary, ie: "lang:es"
+     */
+    public static final String LANGUAGE_LIST_NAME_PREFIX = "lang:";
+
+    /**
+     * Property key to annotate the sentences of large documents in parallel on the common fork-join pool
+     */
+    public static final String PARALLEL_SENTENCES = "stopword-parallel";
+
+    /**
+     * Property key for the minimum number of document tokens before sentences are annotated in parallel
+     */
+    public static final String PARALLEL_TOKEN_THRESHOLD = "stopword-parallel-threshold";
+
+    /**
+     * Default minimum number of document tokens before sentences are annotated in parallel.
+     * This is a conservative starting point, not a measured crossover: run StopwordAnnotatorBenchmark on the
+     * target hardware and set PARALLEL_TOKEN_THRESHOLD to the crossover it reports.
+     */
+    public static final int DEFAULT_PARALLEL_TOKEN_THRESHOLD = 10000;
+
+    /**
+     * Property key to specify the comma delimited list of language dictionaries, ie: "en,es,de,fr".
+     * The stopwords of each language are set with the STOPWORDS_LIST property suffixed by the language,
+     * ie: "stopword-list.es".  If no list is set for "en", the built in Lucene stopword list is used.
+     */
+    public static final String STOPWORDS_LANGUAGES = "stopword-languages";
+
+    /**
+     * Property key to specify the language dictionary used for documents without a (known) LanguageAnnotation.
+     * If not set, the STOPWORDS_LIST (or built in Lucene) stopwords are used.
+     */
+    public static final String DEFAULT_LANGUAGE = "stopword-default-language";
+
     private static Class<? extends Pair> boolPair = Pair.makePair(true, true).getClass();
 
     private Properties props;
-    private CharArraySet stopwords;
+    private StopwordDictionary defaultDictionary;
+    private Map<String, StopwordDictionary> languageDictionaries;
     private boolean checkLemma;
+    private boolean collectStats;
+    private boolean parallel;
+    private int parallelThreshold;
 
     public StopwordAnnotator(String annotatorClass, Properties props) {
         this.props = props;
@@ -51,29 +110,182 @@ public class StopwordAnnotator implements Annotator, CoreAnnotation<Pair<Boolean
         this.checkLemma = Boolean.parseBoolean(props.getProperty(CHECK_LEMMA, "false"));
         boolean ignoreCase = Boolean.parseBoolean(props.getProperty(IGNORE_STOPWORD_CASE, "false"));
 
-        if (this.props.containsKey(STOPWORDS_LIST)) {
-            String stopwordList = props.getProperty(STOPWORDS_LIST);
-            this.stopwords = getStopWordList(Version.LUCENE_36, stopwordList, ignoreCase);
+        this.collectStats = Boolean.parseBoolean(props.getProperty(COLLECT_STATS, "false"));
+
+        this.languageDictionaries = new HashMap<>();
+        if (this.props.containsKey(STOPWORDS_LANGUAGES)) {
+            for (String language : props.getProperty(STOPWORDS_LANGUAGES).split(",")) {
+                language = language.trim().toLowerCase(Locale.ROOT);
+                if (language.isEmpty()) {
+                    continue;
+                }
+                String stopwordList = props.getProperty(STOPWORDS_LIST + "." + language);
+                if (stopwordList == null && !language.equals("en")) {
+                    throw new IllegalArgumentException("No stopword list set for language '" + language + "', set the "
+                            + STOPWORDS_LIST + "." + language + " property");
+                }
+                this.languageDictionaries.put(language, StopwordDictionary.get(LANGUAGE_LIST_NAME_PREFIX + language, stopwordList, ignoreCase));
+            }
+        }
+
+        if (this.props.containsKey(DEFAULT_LANGUAGE)) {
+            String language = props.getProperty(DEFAULT_LANGUAGE).trim().toLowerCase(Locale.ROOT);
+            this.defaultDictionary = this.languageDictionaries.get(language);
+            if (this.defaultDictionary == null) {
+                throw new IllegalArgumentException("Default stopword language '" + language + "' is not in the "
+                        + STOPWORDS_LANGUAGES + " property");
+            }
         } else {
-            this.stopwords = new CharArraySet(Version.LUCENE_36, StopAnalyzer.ENGLISH_STOP_WORDS_SET, ignoreCase);
+            String stopwordList = props.getProperty(STOPWORDS_LIST);
+            String listName = props.getProperty(STOPWORDS_LIST_NAME, getDefaultListName(stopwordList));
+            this.defaultDictionary = StopwordDictionary.get(listName, stopwordList, ignoreCase);
+        }
+
+        //create the hit counters up front so the first document doesn't pay for them
+        if (this.collectStats) {
+            this.defaultDictionary.getHitCounters();
+            for (StopwordDictionary dictionary : this.languageDictionaries.values()) {
+                dictionary.getHitCounters();
+            }
         }
+
+        this.parallel = Boolean.parseBoolean(props.getProperty(PARALLEL_SENTENCES, "false"));
+        this.parallelThreshold = Integer.parseInt(props.getProperty(PARALLEL_TOKEN_THRESHOLD, String.valueOf(DEFAULT_PARALLEL_TOKEN_THRESHOLD)));
     }
 
     @Override
     public void annotate(Annotation annotation) {
-        if (stopwords != null && stopwords.size() > 0 && annotation.containsKey(TokensAnnotation.class)) {
+        //pick the dictionary once per document, the token loops below only see the chosen dictionary
+        StopwordDictionary dictionary = getDictionary(annotation);
+        if (dictionary.stopwords.size() > 0 && annotation.containsKey(TokensAnnotation.class)) {
             List<CoreLabel> tokens = annotation.get(TokensAnnotation.class);
-            for (CoreLabel token : tokens) {
-                boolean isWordStopword = stopwords.contains(token.word());
-                boolean isLemmaStopword = checkLemma && stopwords.contains(token.word());
-                Pair<Boolean, Boolean> pair = Pair.makePair(isWordStopword, isLemmaStopword);
-                token.set(StopwordAnnotator.class, pair);
+            List<CoreMap> sentences = parallel && tokens.size() >= parallelThreshold ? getSentences(annotation, tokens) : null;
+
+            if (sentences != null) {
+                //each sentence holds its own slice of the document's tokens, so sentences can be annotated independently
+                if (collectStats) {
+                    StopwordStats stats = sentences.parallelStream()
+                            .map(sentence -> annotateWithStats(dictionary, sentence.get(TokensAnnotation.class)))
+                            .reduce(new StopwordStats(0, 0, 0), StopwordStats::add);
+                    annotation.set(StopwordStats.class, stats);
+                } else {
+                    sentences.parallelStream().forEach(sentence -> annotateTokens(dictionary, sentence.get(TokensAnnotation.class)));
+                }
+            } else if (collectStats) {
+                //stats get their own loop so the default path pays nothing for them
+                annotation.set(StopwordStats.class, annotateWithStats(dictionary, tokens));
+            } else {
+                annotateTokens(dictionary, tokens);
+            }
+        }
+    }
+
+    /**
+     * Hit counter name of an unnamed stopword list, so unnamed lists with different contents are counted apart
+     */
+    private static String getDefaultListName(String stopwordList) {
+        return stopwordList == null ? DEFAULT_LIST_NAME : "custom-" + Integer.toHexString(stopwordList.hashCode());
+    }
+
+    /**
+     * Returns the dictionary for the document's LanguageAnnotation, ie: "es" or "es-MX",
+     * or the default dictionary if the document has no language or one without a dictionary
+     */
+    private StopwordDictionary getDictionary(Annotation annotation) {
+        String language = annotation.get(CoreAnnotations.LanguageAnnotation.class);
+        if (language == null || languageDictionaries.isEmpty()) {
+            return defaultDictionary;
+        }
+        language = language.toLowerCase(Locale.ROOT);
+        StopwordDictionary dictionary = languageDictionaries.get(language);
+        if (dictionary == null) {
+            //fall back from a regional code to its base language
+            int regionStart = language.indexOf('-') != -1 ? language.indexOf('-') : language.indexOf('_');
+            if (regionStart != -1) {
+                dictionary = languageDictionaries.get(language.substring(0, regionStart));
+            }
+        }
+        return dictionary != null ? dictionary : defaultDictionary;
+    }
+
+    /**
+     * Returns the document's sentences if, in order, they hold the very same CoreLabel objects as the document
+     * tokens, otherwise null.  Sentences holding copies (ie: rebuilt or deserialized annotations) would leave
+     * the document tokens unannotated, so those documents are annotated sequentially.
+     */
+    static List<CoreMap> getSentences(Annotation annotation, List<CoreLabel> tokens) {
+        List<CoreMap> sentences = annotation.get(SentencesAnnotation.class);
+        if (sentences == null) {
+            return null;
+        }
+        int offset = 0;
+        for (CoreMap sentence : sentences) {
+            List<CoreLabel> sentenceTokens = sentence.get(TokensAnnotation.class);
+            if (sentenceTokens == null) {
+                return null;
+            }
+            if (!sentenceTokens.isEmpty()) {
+                int end = offset + sentenceTokens.size();
+                if (end > tokens.size()
+                        || sentenceTokens.get(0) != tokens.get(offset)
+                        || sentenceTokens.get(sentenceTokens.size() - 1) != tokens.get(end - 1)) {
+                    return null;
+                }
+                offset = end;
+            }
+        }
+        return offset == tokens.size() ? sentences : null;
+    }
+
+    private void annotateTokens(StopwordDictionary dictionary, List<CoreLabel> tokens) {
+        CharArraySet stopwords = dictionary.stopwords;
+        for (CoreLabel token : tokens) {
+            boolean isWordStopword = stopwords.contains(token.word());
+            boolean isLemmaStopword = checkLemma && isStopword(stopwords, token.lemma());
+            Pair<Boolean, Boolean> pair = Pair.makePair(isWordStopword, isLemmaStopword);
+            token.set(StopwordAnnotator.class, pair);
+        }
+    }
+
+    /**
+     * Annotates the tokens, bumping the hit counter of each matched stopword entry, and returns the document summary
+     */
+    private StopwordStats annotateWithStats(StopwordDictionary dictionary, List<CoreLabel> tokens) {
+        CharArrayMap<LongAdder> hitCounters = dictionary.getHitCounters();
+        int stopwordCount = 0;
+        int lemmaOnlyCount = 0;
+        for (CoreLabel token : tokens) {
+            LongAdder wordHit = hitCounters.get(token.word());
+            LongAdder lemmaHit = checkLemma ? getHitCounter(hitCounters, token.lemma()) : null;
+            boolean isWordStopword = wordHit != null;
+            boolean isLemmaStopword = lemmaHit != null;
+            token.set(StopwordAnnotator.class, Pair.makePair(isWordStopword, isLemmaStopword));
+
+            if (isWordStopword) {
+                wordHit.increment();
+                stopwordCount++;
+            } else if (isLemmaStopword) {
+                lemmaHit.increment();
+                stopwordCount++;
+                lemmaOnlyCount++;
             }
         }
+        return new StopwordStats(tokens.size(), stopwordCount, lemmaOnlyCount);
+    }
+
+    private static boolean isStopword(CharArraySet stopwords, String term) {
+        return term != null && stopwords.contains(term);
+    }
+
+    private static LongAdder getHitCounter(CharArrayMap<LongAdder> hitCounters, String term) {
+        return term == null ? null : hitCounters.get(term);
     }
 
     @Override
     public Set<Class<? extends CoreAnnotation>> requirementsSatisfied() {
+        if (collectStats) {
+            return new HashSet<>(Arrays.asList(StopwordAnnotator.class, StopwordStats.class));
+        }
         return Collections.singleton(StopwordAnnotator.class);
     }
 
@@ -0,0 +1,121 @@
+package intoxicant.analytics.coreNlp;
+
+import org.apache.lucene.analysis.CharArrayMap;
+import org.apache.lucene.analysis.CharArraySet;
+import org.apache.lucene.analysis.StopAnalyzer;
+import org.apache.lucene.util.Version;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * User: jconwell
+ * A named stopword list, ie: the stopwords for one language.
+ *
+ * Dictionaries are built once per distinct configuration and shared by every StopwordAnnotator in the process,
+ * so several annotators (or several languages in one annotator) never load the same list twice.
+ */
+public class StopwordDictionary {
+
+    private static final ConcurrentMap<List<Object>, StopwordDictionary> dictionaries = new ConcurrentHashMap<>();
+
+    /**
+     * stopword list each hit counter name is counting, so two lists can't count into the same name
+     */
+    private static final ConcurrentMap<String, String> counterLists = new ConcurrentHashMap<>();
+
+    /**
+     * stands in for the built in Lucene stopword list in counterLists
+     */
+    private static final String LUCENE_LIST = "\u0000lucene";
+
+    /**
+     * name of the dictionary, also used as the list name in StopwordHitCounters
+     */
+    public final String name;
+    /**
+     * the stopwords of the dictionary
+     */
+    public final CharArraySet stopwords;
+
+    private final String stopwordList;
+    private final boolean ignoreCase;
+    private volatile CharArrayMap<LongAdder> hitCounters;
+
+    private StopwordDictionary(String name, CharArraySet stopwords, String stopwordList, boolean ignoreCase) {
+        this.name = name;
+        this.stopwords = stopwords;
+        this.stopwordList = stopwordList;
+        this.ignoreCase = ignoreCase;
+    }
+
+    /**
+     * Returns the process wide hit counter of each stopword, created the first time an annotator with statistics
+     * on asks for them
+     * @throws IllegalArgumentException if the dictionary's name is already counting a different stopword list
+     */
+    public CharArrayMap<LongAdder> getHitCounters() {
+        CharArrayMap<LongAdder> counters = hitCounters;
+        if (counters == null) {
+            synchronized (this) {
+                counters = hitCounters;
+                if (counters == null) {
+                    String list = stopwordList != null ? stopwordList : LUCENE_LIST;
+                    String registered = counterLists.putIfAbsent(name, list);
+                    if (registered != null && !registered.equals(list)) {
+                        throw new IllegalArgumentException("Stopword list name '" + name + "' is already counting hits "
+                                + "for a different stopword list, give each stopword list its own name");
+                    }
+                    counters = buildHitCounters(name, stopwords, ignoreCase);
+                    hitCounters = counters;
+                }
+            }
+        }
+        return counters;
+    }
+
+    /**
+     * Returns the shared dictionary for the configuration, building it on first use
+     * @param name dictionary name
+     * @param stopwordList comma delimited list of stopwords, null for the built in Lucene stopword list
+     * @param ignoreCase flag to make the stopword list case insensitive
+     */
+    public static StopwordDictionary get(String name, String stopwordList, boolean ignoreCase) {
+        List<Object> key = Arrays.asList(name, stopwordList, ignoreCase);
+        return dictionaries.computeIfAbsent(key, k -> build(name, stopwordList, ignoreCase));
+    }
+
+    /**
+     * Drops the shared dictionaries so their memory can be released once the annotators holding them are gone,
+     * ie: alongside StanfordCoreNLP.clearAnnotatorPool().  Annotators already holding a dictionary keep using it.
+     */
+    public static void clearDictionaries() {
+        dictionaries.clear();
+    }
+
+    private static StopwordDictionary build(String name, String stopwordList, boolean ignoreCase) {
+        CharArraySet stopwords;
+        if (stopwordList != null) {
+            stopwords = StopwordAnnotator.getStopWordList(Version.LUCENE_36, stopwordList, ignoreCase);
+        } else {
+            stopwords = CharArraySet.unmodifiableSet(new CharArraySet(Version.LUCENE_36, StopAnalyzer.ENGLISH_STOP_WORDS_SET, ignoreCase));
+        }
+        return new StopwordDictionary(name, stopwords, stopwordList, ignoreCase);
+    }
+
+    /**
+     * Maps every entry of the stopword set to its process wide hit counter in the named list
+     */
+    private static CharArrayMap<LongAdder> buildHitCounters(String listName, CharArraySet stopwords, boolean ignoreCase) {
+        StopwordHitCounters counters = StopwordHitCounters.getInstance();
+        CharArrayMap<LongAdder> hitCounters = new CharArrayMap<>(Version.LUCENE_36, stopwords.size(), ignoreCase);
+        for (Object entry : stopwords) {
+            String term = entry instanceof char[] ? new String((char[]) entry) : entry.toString();
+            hitCounters.put(term, counters.counter(listName, term));
+        }
+        return CharArrayMap.unmodifiableMap(hitCounters);
+    }
+}
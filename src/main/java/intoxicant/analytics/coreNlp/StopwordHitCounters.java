@@ -0,0 +1,113 @@
+package intoxicant.analytics.coreNlp;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * User: jconwell
+ * Process wide hit counters for every stopword list entry, shared by all StopwordAnnotator instances
+ * that have the stopword-stats property turned on.
+ *
+ * Counters are LongAdders so concurrent pipelines bump them without contending on a single cell.
+ * Annotators resolve their counters once at construction, so counting a hit never touches the maps here.
+ */
+public class StopwordHitCounters implements StopwordHitCountersMXBean {
+
+    /**
+     * JMX object name the counters are registered under
+     */
+    public static final String OBJECT_NAME = "intoxicant.analytics.coreNlp:type=StopwordHitCounters";
+
+    private static final StopwordHitCounters instance = register(new StopwordHitCounters());
+
+    private final ConcurrentMap<String, ConcurrentMap<String, LongAdder>> counters = new ConcurrentHashMap<>();
+
+    private StopwordHitCounters() {
+    }
+
+    public static StopwordHitCounters getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the counter for an entry of the named stopword list, creating it if needed
+     */
+    public LongAdder counter(String listName, String entry) {
+        return counters
+                .computeIfAbsent(listName, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(entry, k -> new LongAdder());
+    }
+
+    /**
+     * Point in time copy of the hit counts of one stopword list, empty if the list has no counters
+     */
+    public Map<String, Long> snapshot(String listName) {
+        ConcurrentMap<String, LongAdder> list = counters.get(listName);
+        if (list == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, Long> copy = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> entry : list.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue().sum());
+        }
+        return copy;
+    }
+
+    /**
+     * Point in time copy of the hit counts of every stopword list
+     */
+    public Map<String, Map<String, Long>> snapshot() {
+        Map<String, Map<String, Long>> copy = new TreeMap<>();
+        for (String listName : counters.keySet()) {
+            copy.put(listName, snapshot(listName));
+        }
+        return copy;
+    }
+
+    @Override
+    public Set<String> getListNames() {
+        return new TreeSet<>(counters.keySet());
+    }
+
+    @Override
+    public Map<String, Map<String, Long>> getHitCounts() {
+        return snapshot();
+    }
+
+    @Override
+    public long getTotalHits() {
+        long total = 0;
+        for (ConcurrentMap<String, LongAdder> list : counters.values()) {
+            for (LongAdder counter : list.values()) {
+                total += counter.sum();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Zeros every counter.  Counters stay registered so annotators holding them keep counting.
+     */
+    @Override
+    public void reset() {
+        for (ConcurrentMap<String, LongAdder> list : counters.values()) {
+            for (LongAdder counter : list.values()) {
+                counter.reset();
+            }
+        }
+    }
+
+    private static StopwordHitCounters register(StopwordHitCounters counters) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(counters, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            //already registered (ie: loaded by another class loader) or no JMX, counters still work via snapshot()
+        }
+        return counters;
+    }
+}
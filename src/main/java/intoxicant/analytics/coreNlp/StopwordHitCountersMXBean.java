@@ -0,0 +1,31 @@
+package intoxicant.analytics.coreNlp;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * User: jconwell
+ * JMX view of the process wide stopword hit counters
+ */
+public interface StopwordHitCountersMXBean {
+
+    /**
+     * names of the stopword lists that have counters
+     */
+    Set<String> getListNames();
+
+    /**
+     * hit count of every stopword entry, keyed by stopword list name and then by entry
+     */
+    Map<String, Map<String, Long>> getHitCounts();
+
+    /**
+     * sum of all hits across every stopword list
+     */
+    long getTotalHits();
+
+    /**
+     * zero out every counter
+     */
+    void reset();
+}
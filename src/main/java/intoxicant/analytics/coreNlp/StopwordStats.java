@@ -0,0 +1,59 @@
+package intoxicant.analytics.coreNlp;
+
+import edu.stanford.nlp.ling.CoreAnnotation;
+
+/**
+ * User: jconwell
+ * Per document stopword summary set by the StopwordAnnotator when the stopword-stats property is on.
+ * The class doubles as its own CoreAnnotation key, ie: document.get(StopwordStats.class)
+ */
+public class StopwordStats implements CoreAnnotation<StopwordStats> {
+
+    /**
+     * number of tokens checked against the stopword list
+     */
+    public final int tokenCount;
+    /**
+     * number of tokens whose word or lemma is a stopword
+     */
+    public final int stopwordCount;
+    /**
+     * number of tokens where only the lemma, not the word, is a stopword
+     */
+    public final int lemmaOnlyCount;
+
+    public StopwordStats(int tokenCount, int stopwordCount, int lemmaOnlyCount) {
+        this.tokenCount = tokenCount;
+        this.stopwordCount = stopwordCount;
+        this.lemmaOnlyCount = lemmaOnlyCount;
+    }
+
+    /**
+     * Fraction of tokens that are stopwords, 0 for an empty document
+     */
+    public double stopwordDensity() {
+        return tokenCount == 0 ? 0.0 : (double) stopwordCount / tokenCount;
+    }
+
+    /**
+     * Returns the sum of these stats and another set, ie: to combine per sentence stats into document stats
+     */
+    public StopwordStats add(StopwordStats other) {
+        return new StopwordStats(
+                tokenCount + other.tokenCount,
+                stopwordCount + other.stopwordCount,
+                lemmaOnlyCount + other.lemmaOnlyCount);
+    }
+
+    @Override
+    public Class<StopwordStats> getType() {
+        return StopwordStats.class;
+    }
+
+    @Override
+    public String toString() {
+        return "StopwordStats{tokenCount=" + tokenCount +
+                ", stopwordCount=" + stopwordCount +
+                ", lemmaOnlyCount=" + lemmaOnlyCount + "}";
+    }
+}
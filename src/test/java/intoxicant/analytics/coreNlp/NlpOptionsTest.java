@@ -1,13 +1,26 @@
 package intoxicant.analytics.coreNlp;
 
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreAnnotation;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.pipeline.Annotator;
 import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+import org.junit.After;
 import org.junit.Test;
 
+import java.util.Collections;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
+import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNotNull;
 import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
 
 /**
  * User: jconwell
@@ -19,6 +32,14 @@ import static junit.framework.Assert.assertTrue;
 public class NlpOptionsTest {
     private static final int maxSentenceDist = 125;
 
+    //upper bound on waiting for models to load, so a readiness future that never completes fails instead of hanging
+    private static final long loadTimeoutSeconds = 300;
+
+    @After
+    public void after() {
+        LazyNlpAnalyzer.clearAnnotatorCache();
+    }
+
     @Test
     public void tokenizationOnlyTest() {
         NlpOptions options = NlpOptions.tokenizationOnly(false);
@@ -120,4 +141,119 @@ public class NlpOptionsTest {
         StanfordCoreNLP nlp = options.buildNlpAnalyzer();
         assertNotNull(nlp);
     }
+
+    @Test
+    public void lazyOnFirstUseTest() {
+        NlpOptions options = NlpOptions.tokenizationOnly(true);
+        LazyNlpAnalyzer nlp = options.buildLazyNlpAnalyzer(LazyNlpAnalyzer.LoadMode.ON_FIRST_USE);
+        assertFalse(nlp.isReady());
+        assertEquals(4, nlp.getStartupReport().pending.size());
+
+        //the first document loads every model
+        Annotation document = new Annotation("Lazy loading keeps startup fast.");
+        nlp.annotate(document);
+        assertNotNull(document.get(CoreAnnotations.TokensAnnotation.class).get(0).lemma());
+
+        assertTrue(nlp.isReady());
+        StartupReport report = nlp.getStartupReport();
+        assertTrue(report.pending.isEmpty());
+        assertTrue(report.failed.isEmpty());
+        assertEquals(4, report.loadTimeMillis.size());
+        assertTrue(report.readyMillis >= 0);
+    }
+
+    @Test
+    public void lazyBackgroundTest() throws Exception {
+        NlpOptions options = NlpOptions.tokenizationOnly(false);
+        LazyNlpAnalyzer nlp = options.buildLazyNlpAnalyzer(LazyNlpAnalyzer.LoadMode.BACKGROUND);
+
+        //a health check can wait on a single annotator or on the whole pipeline
+        assertNotNull(nlp.readiness("tokenize").get(loadTimeoutSeconds, TimeUnit.SECONDS));
+        nlp.readiness().get(loadTimeoutSeconds, TimeUnit.SECONDS);
+        assertTrue(nlp.isReady());
+        assertEquals(3, nlp.getStartupReport().loadTimeMillis.size());
+
+        Annotation document = new Annotation("Background loading keeps startup fast.");
+        nlp.annotate(document);
+        assertNotNull(document.get(CoreAnnotations.TokensAnnotation.class).get(0).tag());
+    }
+
+    @Test
+    public void lazyBackgroundLoadsInParallelTest() throws Exception {
+        //two annotators that can only finish loading once both are loading at the same time
+        Properties props = new Properties();
+        props.setProperty("annotators", "latchA latchB");
+        props.setProperty("customAnnotatorClass.latchA", LatchAnnotator.class.getName());
+        props.setProperty("customAnnotatorClass.latchB", LatchAnnotator.class.getName());
+        LazyNlpAnalyzer nlp = new LazyNlpAnalyzer(props, LazyNlpAnalyzer.LoadMode.BACKGROUND);
+
+        nlp.readiness().get(loadTimeoutSeconds, TimeUnit.SECONDS);
+        assertTrue(nlp.isReady());
+        assertEquals(2, nlp.getStartupReport().loadTimeMillis.size());
+        assertEquals(Collections.singleton("nlp-model-loader"), LatchAnnotator.loadingThreads);
+    }
+
+    @Test
+    public void lazyBackgroundLoadFailureTest() throws Exception {
+        NlpOptions options = NlpOptions.tokenizationOnly(false);
+        Properties props = options.getNlpProperties();
+        props.setProperty("pos.model", "does/not/exist.tagger");
+        LazyNlpAnalyzer nlp = options.buildLazyNlpAnalyzer(props, LazyNlpAnalyzer.LoadMode.BACKGROUND);
+
+        try {
+            nlp.readiness().get(loadTimeoutSeconds, TimeUnit.SECONDS);
+            fail("readiness should complete exceptionally when a model fails to load");
+        } catch (ExecutionException e) {
+            //expected
+        }
+        assertFalse(nlp.isReady());
+        assertTrue(nlp.readiness("pos").isCompletedExceptionally());
+
+        StartupReport report = nlp.getStartupReport();
+        assertTrue(report.failed.contains("pos"));
+        assertTrue(report.pending.isEmpty());
+        assertEquals(-1, report.readyMillis);
+    }
+
+    @Test
+    public void lazyAnnotatorSeparatorsTest() {
+        Properties props = NlpOptions.tokenizationOnly(false).getNlpProperties();
+        props.setProperty("annotators", "tokenize ssplit,\tpos");
+        LazyNlpAnalyzer nlp = new LazyNlpAnalyzer(props, LazyNlpAnalyzer.LoadMode.ON_FIRST_USE);
+        assertEquals(3, nlp.getStartupReport().pending.size());
+    }
+
+    /**
+     * Annotator whose construction blocks until two of them are being constructed at once
+     */
+    public static class LatchAnnotator implements Annotator {
+        static final CountDownLatch bothLoading = new CountDownLatch(2);
+        static final Set<String> loadingThreads = ConcurrentHashMap.newKeySet();
+
+        public LatchAnnotator(String name, Properties props) {
+            loadingThreads.add(Thread.currentThread().getName());
+            bothLoading.countDown();
+            try {
+                if (!bothLoading.await(loadTimeoutSeconds, TimeUnit.SECONDS)) {
+                    throw new IllegalStateException("annotators were not loaded in parallel");
+                }
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void annotate(Annotation annotation) {
+        }
+
+        @Override
+        public Set<Class<? extends CoreAnnotation>> requirementsSatisfied() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public Set<Class<? extends CoreAnnotation>> requires() {
+            return Collections.emptySet();
+        }
+    }
 }
@@ -0,0 +1,113 @@
+package intoxicant.analytics.coreNlp;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.util.ArrayCoreMap;
+import edu.stanford.nlp.util.CoreMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * User: jconwell
+ * Compares sequential and parallel sentence annotation in the StopwordAnnotator over a range of document sizes,
+ * to find the token count where parallel annotation starts to pay off (ie: a value for stopword-parallel-threshold).
+ *
+ * This isn't a unit test, run its main method from the IDE or with:
+ *   mvn test-compile exec:java -Dexec.mainClass=intoxicant.analytics.coreNlp.StopwordAnnotatorBenchmark -Dexec.classpathScope=test
+ */
+public class StopwordAnnotatorBenchmark {
+
+    private static final String[] words =
+            "The history of NLP generally starts in the 1950s , although work can be found from earlier periods .".split(" ");
+
+    private static final int[] documentSizes = {100, 500, 1000, 2500, 5000, 10000, 25000, 50000, 100000, 500000};
+
+    /**
+     * parallel annotation has to be at least this much faster to count, so timing noise doesn't pick the crossover
+     */
+    private static final double minSpeedup = 1.1;
+
+    private static final int sentenceLength = 25;
+    private static final int warmupRuns = 50;
+    private static final int timedRuns = 25;
+
+    public static void main(String[] args) {
+        Properties props = new Properties();
+        props.setProperty(StopwordAnnotator.IGNORE_STOPWORD_CASE, "true");
+        StopwordAnnotator sequential = new StopwordAnnotator(StopwordAnnotator.ANNOTATOR_CLASS, props);
+
+        props.setProperty(StopwordAnnotator.PARALLEL_SENTENCES, "true");
+        props.setProperty(StopwordAnnotator.PARALLEL_TOKEN_THRESHOLD, "0");
+        StopwordAnnotator parallel = new StopwordAnnotator(StopwordAnnotator.ANNOTATOR_CLASS, props);
+
+        System.out.println("cores: " + Runtime.getRuntime().availableProcessors());
+        System.out.printf("%10s %15s %15s %10s%n", "tokens", "sequential us", "parallel us", "speedup");
+
+        double[] speedups = new double[documentSizes.length];
+        for (int i = 0; i < documentSizes.length; i++) {
+            Annotation document = buildDocument(documentSizes[i]);
+            double sequentialMicros = time(sequential, document);
+            double parallelMicros = time(parallel, document);
+            speedups[i] = sequentialMicros / parallelMicros;
+            System.out.printf("%10d %15.1f %15.1f %10.2f%n", documentSizes[i], sequentialMicros, parallelMicros, speedups[i]);
+        }
+
+        //the crossover is the smallest size from which parallel annotation stays faster for every larger size
+        int crossover = -1;
+        for (int i = documentSizes.length - 1; i >= 0 && speedups[i] > minSpeedup; i--) {
+            crossover = documentSizes[i];
+        }
+
+        if (crossover == -1) {
+            System.out.println("parallel annotation was never consistently faster, leave " + StopwordAnnotator.PARALLEL_SENTENCES + " off");
+        } else {
+            System.out.println("parallel annotation pays off from about " + crossover + " tokens, set "
+                    + StopwordAnnotator.PARALLEL_TOKEN_THRESHOLD + " near that value");
+        }
+    }
+
+    /**
+     * Returns the median time in microseconds to annotate the document
+     */
+    private static double time(StopwordAnnotator annotator, Annotation document) {
+        for (int i = 0; i < warmupRuns; i++) {
+            annotator.annotate(document);
+        }
+        long[] runs = new long[timedRuns];
+        for (int i = 0; i < timedRuns; i++) {
+            long start = System.nanoTime();
+            annotator.annotate(document);
+            runs[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(runs);
+        return runs[timedRuns / 2] / 1000.0;
+    }
+
+    /**
+     * Builds a document the way tokenize and ssplit would, with each sentence holding a slice of the document tokens
+     */
+    private static Annotation buildDocument(int tokenCount) {
+        List<CoreLabel> tokens = new ArrayList<>(tokenCount);
+        for (int i = 0; i < tokenCount; i++) {
+            CoreLabel token = new CoreLabel();
+            token.setWord(words[i % words.length]);
+            tokens.add(token);
+        }
+
+        List<CoreMap> sentences = new ArrayList<>();
+        for (int start = 0; start < tokenCount; start += sentenceLength) {
+            CoreMap sentence = new ArrayCoreMap();
+            sentence.set(CoreAnnotations.TokensAnnotation.class, tokens.subList(start, Math.min(start + sentenceLength, tokenCount)));
+            sentences.add(sentence);
+        }
+
+        Annotation document = new Annotation("");
+        document.set(CoreAnnotations.TokensAnnotation.class, tokens);
+        document.set(CoreAnnotations.SentencesAnnotation.class, sentences);
+        return document;
+    }
+}
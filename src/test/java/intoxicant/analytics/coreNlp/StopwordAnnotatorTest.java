@@ -4,13 +4,18 @@ import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.CoreLabel;
 import edu.stanford.nlp.pipeline.Annotation;
 import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+import edu.stanford.nlp.util.ArrayCoreMap;
+import edu.stanford.nlp.util.CoreMap;
 import edu.stanford.nlp.util.Pair;
 import org.apache.lucene.analysis.StopAnalyzer;
 import org.apache.lucene.util.Version;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 
@@ -45,6 +50,11 @@ public class StopwordAnnotatorTest {
         props.setProperty("customAnnotatorClass.stopword", "intoxicant.analytics.coreNlp.StopwordAnnotator");
     }
 
+    @After
+    public void after() {
+        StopwordDictionary.clearDictionaries();
+    }
+
     @Test
     public void testRequirementsSatisfied() {
         props.setProperty("annotators", "tokenize, ssplit, stopword");
@@ -330,4 +340,188 @@ public class StopwordAnnotatorTest {
         }
         StanfordCoreNLP.clearAnnotatorPool();
     }
+
+    /**
+     * Test to validate the per document stopword summary and the process wide hit counters
+     */
+    @Test
+    public void testStopwordStats() {
+
+        //setup coreNlp properties for stopwords. Note the stats property and the list name used for the hit counters
+        props.setProperty("annotators", "tokenize, ssplit, stopword");
+        props.setProperty(StopwordAnnotator.COLLECT_STATS, "true");
+        props.setProperty(StopwordAnnotator.STOPWORDS_LIST_NAME, "testStopwordStats");
+        props.setProperty(StopwordAnnotator.IGNORE_STOPWORD_CASE, String.valueOf(true));
+
+        StanfordCoreNLP pipeline = new StanfordCoreNLP(props, false);
+        Annotation document = new Annotation(example);
+        pipeline.annotate(document);
+        List<CoreLabel> tokens = document.get(CoreAnnotations.TokensAnnotation.class);
+
+        int stopwordCount = 0;
+        for (CoreLabel token : tokens) {
+            if (token.get(StopwordAnnotator.class).first()) {
+                stopwordCount++;
+            }
+        }
+
+        StopwordStats stats = document.get(StopwordStats.class);
+        assertNotNull(stats);
+        assertEquals(tokens.size(), stats.tokenCount);
+        assertEquals(stopwordCount, stats.stopwordCount);
+        assertEquals(0, stats.lemmaOnlyCount);
+
+        //"the" shows up twice in the example, "The" and "the"
+        Map<String, Long> hits = StopwordHitCounters.getInstance().snapshot("testStopwordStats");
+        assertEquals(Long.valueOf(2), hits.get("the"));
+        long totalHits = 0;
+        for (Long count : hits.values()) {
+            totalHits += count;
+        }
+        assertEquals(stopwordCount, totalHits);
+        StanfordCoreNLP.clearAnnotatorPool();
+    }
+
+    /**
+     * Test to validate that hit counters of different stopword lists are never added together
+     */
+    @Test
+    public void testStopwordStatsListNames() {
+        props.setProperty(StopwordAnnotator.COLLECT_STATS, "true");
+
+        //an unnamed custom list doesn't count into the default (Lucene list) counters
+        props.setProperty(StopwordAnnotator.STOPWORDS_LIST, "history,nlp");
+        StopwordAnnotator sw = new StopwordAnnotator(StopwordAnnotator.ANNOTATOR_CLASS, props);
+        Annotation document = new Annotation("");
+        CoreLabel token = new CoreLabel();
+        token.setWord("history");
+        List<CoreLabel> tokens = new ArrayList<>();
+        tokens.add(token);
+        document.set(CoreAnnotations.TokensAnnotation.class, tokens);
+        sw.annotate(document);
+        assertNull(StopwordHitCounters.getInstance().snapshot(StopwordAnnotator.DEFAULT_LIST_NAME).get("history"));
+
+        //a name can't count hits for two different lists
+        props.setProperty(StopwordAnnotator.STOPWORDS_LIST_NAME, "testStopwordStatsListNames");
+        new StopwordAnnotator(StopwordAnnotator.ANNOTATOR_CLASS, props);
+        props.setProperty(StopwordAnnotator.STOPWORDS_LIST, "history,nlp,period");
+        try {
+            new StopwordAnnotator(StopwordAnnotator.ANNOTATOR_CLASS, props);
+            fail("a list name already counting a different stopword list should be rejected");
+        } catch (IllegalArgumentException e) {
+            //expected
+        }
+    }
+
+    /**
+     * Test to validate that annotating sentences in parallel gives the same results as sequential annotation
+     */
+    @Test
+    public void testParallelMatchesSequential() {
+        props.setProperty("annotators", "tokenize, ssplit");
+        props.setProperty(StopwordAnnotator.COLLECT_STATS, "true");
+        props.setProperty(StopwordAnnotator.STOPWORDS_LIST_NAME, "testParallelMatchesSequential");
+
+        //build a multi sentence document
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            text.append(example).append(' ');
+        }
+        StanfordCoreNLP pipeline = new StanfordCoreNLP(props, false);
+        Annotation document = new Annotation(text.toString());
+        pipeline.annotate(document);
+        List<CoreLabel> tokens = document.get(CoreAnnotations.TokensAnnotation.class);
+
+        StopwordAnnotator sequential = new StopwordAnnotator(StopwordAnnotator.ANNOTATOR_CLASS, props);
+        sequential.annotate(document);
+        List<Pair<Boolean, Boolean>> expected = new ArrayList<>();
+        for (CoreLabel token : tokens) {
+            expected.add(token.get(StopwordAnnotator.class));
+        }
+        StopwordStats expectedStats = document.get(StopwordStats.class);
+
+        //threshold of 0 forces the parallel path, as long as the sentences hold the document tokens
+        assertNotNull(StopwordAnnotator.getSentences(document, tokens));
+        props.setProperty(StopwordAnnotator.PARALLEL_SENTENCES, "true");
+        props.setProperty(StopwordAnnotator.PARALLEL_TOKEN_THRESHOLD, "0");
+        StopwordAnnotator parallel = new StopwordAnnotator(StopwordAnnotator.ANNOTATOR_CLASS, props);
+        for (CoreLabel token : tokens) {
+            token.remove(StopwordAnnotator.class);
+        }
+        parallel.annotate(document);
+
+        for (int i = 0; i < tokens.size(); i++) {
+            assertEquals(expected.get(i), tokens.get(i).get(StopwordAnnotator.class));
+        }
+        StopwordStats stats = document.get(StopwordStats.class);
+        assertEquals(expectedStats.tokenCount, stats.tokenCount);
+        assertEquals(expectedStats.stopwordCount, stats.stopwordCount);
+        assertEquals(expectedStats.lemmaOnlyCount, stats.lemmaOnlyCount);
+
+        //sentences holding copies of the document tokens fall back to sequential annotation of the document tokens
+        List<CoreMap> copiedSentences = new ArrayList<>();
+        for (CoreMap sentence : document.get(CoreAnnotations.SentencesAnnotation.class)) {
+            List<CoreLabel> copies = new ArrayList<>();
+            for (CoreLabel token : sentence.get(CoreAnnotations.TokensAnnotation.class)) {
+                copies.add(new CoreLabel(token));
+            }
+            CoreMap copy = new ArrayCoreMap();
+            copy.set(CoreAnnotations.TokensAnnotation.class, copies);
+            copiedSentences.add(copy);
+        }
+        document.set(CoreAnnotations.SentencesAnnotation.class, copiedSentences);
+        assertNull(StopwordAnnotator.getSentences(document, tokens));
+        for (CoreLabel token : tokens) {
+            token.remove(StopwordAnnotator.class);
+        }
+        parallel.annotate(document);
+        for (int i = 0; i < tokens.size(); i++) {
+            assertEquals(expected.get(i), tokens.get(i).get(StopwordAnnotator.class));
+        }
+        assertEquals(expectedStats.stopwordCount, document.get(StopwordStats.class).stopwordCount);
+        StanfordCoreNLP.clearAnnotatorPool();
+    }
+
+    /**
+     * Test to validate that the stopword dictionary is picked by the document's language annotation
+     */
+    @Test
+    public void testLanguageDictionaries() {
+        props.setProperty("annotators", "tokenize, ssplit");
+        props.setProperty(StopwordAnnotator.STOPWORDS_LANGUAGES, "en, ,es,");
+        props.setProperty(StopwordAnnotator.STOPWORDS_LIST + ".es", "el,la,los,las,de,en,y,que,a");
+        props.setProperty(StopwordAnnotator.DEFAULT_LANGUAGE, "en");
+        props.setProperty(StopwordAnnotator.IGNORE_STOPWORD_CASE, String.valueOf(true));
+        StanfordCoreNLP pipeline = new StanfordCoreNLP(props, false);
+        StopwordAnnotator sw = new StopwordAnnotator(StopwordAnnotator.ANNOTATOR_CLASS, props);
+
+        //spanish document, regional language code falls back to its base language
+        Annotation spanish = new Annotation("La historia de la PNL comienza en los años 1950.");
+        spanish.set(CoreAnnotations.LanguageAnnotation.class, "es-MX");
+        pipeline.annotate(spanish);
+        sw.annotate(spanish);
+        for (CoreLabel token : spanish.get(CoreAnnotations.TokensAnnotation.class)) {
+            String word = token.word().toLowerCase();
+            boolean expected = word.equals("la") || word.equals("de") || word.equals("en") || word.equals("los");
+            assertEquals(expected, token.get(StopwordAnnotator.class).first());
+        }
+
+        //english document without a language annotation uses the default (built in Lucene) dictionary
+        Annotation english = new Annotation(example);
+        pipeline.annotate(english);
+        sw.annotate(english);
+        Set<?> stopWords = StopAnalyzer.ENGLISH_STOP_WORDS_SET;
+        for (CoreLabel token : english.get(CoreAnnotations.TokensAnnotation.class)) {
+            assertEquals(stopWords.contains(token.word().toLowerCase()), token.get(StopwordAnnotator.class).first());
+        }
+
+        //annotators with the same language configuration share one dictionary, with or without statistics
+        String spanishList = props.getProperty(StopwordAnnotator.STOPWORDS_LIST + ".es");
+        String spanishName = StopwordAnnotator.LANGUAGE_LIST_NAME_PREFIX + "es";
+        StopwordDictionary spanishDictionary = StopwordDictionary.get(spanishName, spanishList, true);
+        props.setProperty(StopwordAnnotator.COLLECT_STATS, "true");
+        new StopwordAnnotator(StopwordAnnotator.ANNOTATOR_CLASS, props);
+        assertSame(spanishDictionary, StopwordDictionary.get(spanishName, spanishList, true));
+        StanfordCoreNLP.clearAnnotatorPool();
+    }
 }